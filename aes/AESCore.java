@@ -0,0 +1,367 @@
+package aes;
+
+/**
+ *	This class implements the layers of the Advanced Encryption Standard
+ *	directly on byte arrays. It mirrors the layers of AESMethods2, but keeps
+ *	the data path as a 16 byte array in column-major order and the key
+ *	schedule as an array of 32 bit words so that the cipher can be evaluated
+ *	without any String conversions.
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class AESCore
+{
+	/** Block size in bytes */
+	public static final int BLOCK_SIZE = 16;
+
+	/**
+	 *	Returns the number of rounds performed for a key of the given length.
+	 *
+	 *	@param	keyLength	Key length in bytes (16, 24 or 32)
+	 *	@return				Number of rounds (10, 12 or 14)
+	 */
+	public static int rounds(int keyLength)
+	{
+		validateKeyLength(keyLength, "rounds()");
+
+		return (keyLength / 4) + 6;
+	}
+
+	/**
+	 *	Expands the input key into the full key schedule.
+	 *
+	 *	@param	key		Encryption key (16, 24 or 32 bytes)
+	 *	@return			Key schedule as 4 * (rounds + 1) big-endian words
+	 */
+	public static int[] expandKey(byte[] key)
+	{
+		validateKeyLength(key.length, "expandKey()");
+
+		int nk = key.length / 4;
+		int[] w = new int[4 * (nk + 7)];
+
+		// Load the first Nk words with the input key
+		for(int i = 0; i < nk; i++)
+			w[i] = word(key, 4 * i);
+
+		// Derive the remaining words
+		for(int i = nk; i < w.length; i++)
+		{
+			int temp = w[i - 1];
+
+			if(i % nk == 0)
+				temp = subWord(rotWord(temp)) ^ (AESTables.RCON[(i / nk) - 1] << 24);
+			else if(nk > 6 && i % nk == 4)
+				temp = subWord(temp);
+
+			w[i] = w[i - nk] ^ temp;
+		}
+
+		return w;
+	}
+
+	/**
+	 *	Encrypts a single block with the full number of rounds.
+	 *
+	 *	@param	w		Key schedule produced by expandKey()
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext block in the input buffer
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the ciphertext block in the output buffer
+	 */
+	public static void encryptBlock(int[] w, byte[] in, int inOff, byte[] out, int outOff)
+	{
+		encryptBlock(w, 0, (w.length / 4) - 1, in, inOff, out, outOff);
+	}
+
+	/**
+	 *	Encrypts a single block with a key schedule stored at an offset of a
+	 *	larger array, such as the concatenated schedules produced by
+	 *	BatchKeySchedule.expandKeys().
+	 *
+	 *	@param	w		Buffer holding the key schedule
+	 *	@param	wOff	Offset of the first word of the key schedule
+	 *	@param	rounds	Number of rounds (10, 12 or 14)
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext block in the input buffer
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the ciphertext block in the output buffer
+	 */
+	public static void encryptBlock(int[] w, int wOff, int rounds, byte[] in, int inOff, byte[] out, int outOff)
+	{
+		encryptRounds(w, wOff, rounds, false, in, inOff, out, outOff);
+	}
+
+	/**
+	 *	Encrypts a single block with the given number of rounds, optionally
+	 *	keeping MixColumns in the final round as reduced-round variants do.
+	 *
+	 *	@param	w				Buffer holding the key schedule
+	 *	@param	wOff			Offset of the first word of the key schedule
+	 *	@param	rounds			Number of rounds (at least 1)
+	 *	@param	mixLastRound	Whether the final round applies MixColumns
+	 *	@param	in				Input buffer
+	 *	@param	inOff			Offset of the plaintext block in the input buffer
+	 *	@param	out				Output buffer (may be the input buffer)
+	 *	@param	outOff			Offset of the ciphertext block in the output buffer
+	 */
+	static void encryptRounds(int[] w, int wOff, int rounds, boolean mixLastRound, byte[] in, int inOff, byte[] out, int outOff)
+	{
+		int tableRounds = mixLastRound ? rounds + 1 : rounds;
+
+		// Load the columns of the data path and add the initial round subkey
+		int s0 = word(in, inOff) ^ w[wOff];
+		int s1 = word(in, inOff + 4) ^ w[wOff + 1];
+		int s2 = word(in, inOff + 8) ^ w[wOff + 2];
+		int s3 = word(in, inOff + 12) ^ w[wOff + 3];
+
+		// Each T-table lookup performs ByteSubstitution and MixColumns for one
+		// byte, with ShiftRows applied by the choice of source column
+		int k = wOff + 4;
+		for(int round = 1; round < tableRounds; round++)
+		{
+			int t0 = AESTables.TE0[s0 >>> 24] ^ AESTables.TE1[(s1 >>> 16) & 0xFF] ^ AESTables.TE2[(s2 >>> 8) & 0xFF] ^ AESTables.TE3[s3 & 0xFF] ^ w[k];
+			int t1 = AESTables.TE0[s1 >>> 24] ^ AESTables.TE1[(s2 >>> 16) & 0xFF] ^ AESTables.TE2[(s3 >>> 8) & 0xFF] ^ AESTables.TE3[s0 & 0xFF] ^ w[k + 1];
+			int t2 = AESTables.TE0[s2 >>> 24] ^ AESTables.TE1[(s3 >>> 16) & 0xFF] ^ AESTables.TE2[(s0 >>> 8) & 0xFF] ^ AESTables.TE3[s1 & 0xFF] ^ w[k + 2];
+			int t3 = AESTables.TE0[s3 >>> 24] ^ AESTables.TE1[(s0 >>> 16) & 0xFF] ^ AESTables.TE2[(s1 >>> 8) & 0xFF] ^ AESTables.TE3[s2 & 0xFF] ^ w[k + 3];
+
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+			k += 4;
+		}
+
+		if(mixLastRound)
+		{
+			putWord(s0, out, outOff);
+			putWord(s1, out, outOff + 4);
+			putWord(s2, out, outOff + 8);
+			putWord(s3, out, outOff + 12);
+			return;
+		}
+
+		// The final round omits MixColumns
+		putWord(finalColumn(s0, s1, s2, s3) ^ w[k], out, outOff);
+		putWord(finalColumn(s1, s2, s3, s0) ^ w[k + 1], out, outOff + 4);
+		putWord(finalColumn(s2, s3, s0, s1) ^ w[k + 2], out, outOff + 8);
+		putWord(finalColumn(s3, s0, s1, s2) ^ w[k + 3], out, outOff + 12);
+	}
+
+	/**
+	 *	Applies ByteSubstitution and ShiftRows to produce one output column of
+	 *	the final round.
+	 */
+	static int finalColumn(int a, int b, int c, int d)
+	{
+		return ((AESTables.SBOX[a >>> 24] & 0xFF) << 24)
+			 | ((AESTables.SBOX[(b >>> 16) & 0xFF] & 0xFF) << 16)
+			 | ((AESTables.SBOX[(c >>> 8) & 0xFF] & 0xFF) << 8)
+			 |  (AESTables.SBOX[d & 0xFF] & 0xFF);
+	}
+
+	/**
+	 *	Adds the round subkey to the data path using addition in the
+	 *	Galois field GF(2).
+	 *
+	 *	@param	state	Data path (16 bytes, modified in place)
+	 *	@param	w		Key schedule
+	 *	@param	round	Round whose subkey is added
+	 */
+	public static void keyAddition(byte[] state, int[] w, int round)
+	{
+		for(int c = 0; c < 4; c++)
+		{
+			int k = w[(4 * round) + c];
+
+			state[4 * c]       ^= (byte) (k >>> 24);
+			state[(4 * c) + 1] ^= (byte) (k >>> 16);
+			state[(4 * c) + 2] ^= (byte) (k >>> 8);
+			state[(4 * c) + 3] ^= (byte) k;
+		}
+	}
+
+	/**
+	 *	Performs a substitution of every byte of the data path using the
+	 *	S-box.
+	 *
+	 *	@param	state	Data path (16 bytes, modified in place)
+	 */
+	public static void byteSubstitution(byte[] state)
+	{
+		for(int i = 0; i < BLOCK_SIZE; i++)
+			state[i] = AESTables.SBOX[state[i] & 0xFF];
+	}
+
+	/**
+	 *	Shifts each row of the data path matrix by a predefined number of
+	 *	indices.
+	 *
+	 *	@param	state	Data path (16 bytes, modified in place)
+	 */
+	public static void shiftRows(byte[] state)
+	{
+		byte t;
+
+		// Row 1 is rotated left by one
+		t         = state[1];
+		state[1]  = state[5];
+		state[5]  = state[9];
+		state[9]  = state[13];
+		state[13] = t;
+
+		// Row 2 is rotated left by two
+		t         = state[2];
+		state[2]  = state[10];
+		state[10] = t;
+		t         = state[6];
+		state[6]  = state[14];
+		state[14] = t;
+
+		// Row 3 is rotated left by three
+		t         = state[15];
+		state[15] = state[11];
+		state[11] = state[7];
+		state[7]  = state[3];
+		state[3]  = t;
+	}
+
+	/**
+	 *	Performs a linear transformation that mixes each column of the data
+	 *	matrix.
+	 *
+	 *	@param	state	Data path (16 bytes, modified in place)
+	 */
+	public static void mixColumns(byte[] state)
+	{
+		for(int c = 0; c < BLOCK_SIZE; c += 4)
+		{
+			int a0 = state[c] & 0xFF;
+			int a1 = state[c + 1] & 0xFF;
+			int a2 = state[c + 2] & 0xFF;
+			int a3 = state[c + 3] & 0xFF;
+
+			state[c]     = (byte) (AESTables.MUL2[a0] ^ AESTables.MUL3[a1] ^ a2 ^ a3);
+			state[c + 1] = (byte) (a0 ^ AESTables.MUL2[a1] ^ AESTables.MUL3[a2] ^ a3);
+			state[c + 2] = (byte) (a0 ^ a1 ^ AESTables.MUL2[a2] ^ AESTables.MUL3[a3]);
+			state[c + 3] = (byte) (AESTables.MUL3[a0] ^ a1 ^ a2 ^ AESTables.MUL2[a3]);
+		}
+	}
+
+	/**
+	 *	Applies the S-box to every byte of a 32 bit word.
+	 */
+	static int subWord(int word)
+	{
+		return ((AESTables.SBOX[word >>> 24] & 0xFF) << 24)
+			 | ((AESTables.SBOX[(word >>> 16) & 0xFF] & 0xFF) << 16)
+			 | ((AESTables.SBOX[(word >>> 8) & 0xFF] & 0xFF) << 8)
+			 |  (AESTables.SBOX[word & 0xFF] & 0xFF);
+	}
+
+	/**
+	 *	Rotates a 32 bit word left by one byte.
+	 */
+	static int rotWord(int word)
+	{
+		return (word << 8) | (word >>> 24);
+	}
+
+	/**
+	 *	Reads a big-endian 32 bit word from a byte array.
+	 */
+	static int word(byte[] b, int off)
+	{
+		return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+	}
+
+	/**
+	 *	Writes a big-endian 32 bit word to a byte array.
+	 */
+	static void putWord(int word, byte[] b, int off)
+	{
+		b[off]     = (byte) (word >>> 24);
+		b[off + 1] = (byte) (word >>> 16);
+		b[off + 2] = (byte) (word >>> 8);
+		b[off + 3] = (byte) word;
+	}
+
+	/**
+	 *	Converts a hexadecimal string to bytes.
+	 *
+	 *	@param	hex		Hexadecimal string of even length
+	 *	@param	method	The name of the method calling this method
+	 *	@return			Decoded bytes
+	 */
+	static byte[] parseHex(String hex, String method)
+	{
+		if(hex.length() % 2 != 0)
+		{
+			System.out.println("[Error] Invalid hexadecimal input to " + method + ". Halting execution.");
+			System.exit(1);
+		}
+
+		byte[] bytes = new byte[hex.length() / 2];
+
+		for(int i = 0; i < bytes.length; i++)
+		{
+			int hi = Character.digit(hex.charAt(2 * i), 16);
+			int lo = Character.digit(hex.charAt((2 * i) + 1), 16);
+
+			if(hi < 0 || lo < 0)
+			{
+				System.out.println("[Error] Invalid hexadecimal input to " + method + ". Halting execution.");
+				System.exit(1);
+			}
+
+			bytes[i] = (byte) ((hi << 4) | lo);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 *	Converts bytes to a lowercase hexadecimal string.
+	 */
+	static String toHex(byte[] bytes)
+	{
+		StringBuilder sb = new StringBuilder();
+
+		for(int i = 0; i < bytes.length; i++)
+			sb.append(String.format("%02x", bytes[i]));
+
+		return sb.toString();
+	}
+
+	/**
+	 *	Validates the block size of a data path
+	 *
+	 *	@param	block	Block for validation
+	 *	@param	method	The name of the method calling this method
+	 */
+	static void validateBlock(byte[] block, String method)
+	{
+		if(block.length != BLOCK_SIZE)
+		{
+			System.out.println("[Error] Invalid block size input to " + method + ". Halting execution.");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 *	Validates the length of an encryption key
+	 *
+	 *	@param	length	Key length in bytes
+	 *	@param	method	The name of the method calling this method
+	 */
+	static void validateKeyLength(int length, String method)
+	{
+		if(length != 16 && length != 24 && length != 32)
+		{
+			System.out.println("[Error] Invalid key block size input to " + method + ". Halting execution.");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,278 @@
+package aes;
+
+import java.util.Arrays;
+
+/**
+ *	This class implements the ECB, CBC, CTR and GCM modes of operation on
+ *	top of the block cipher in AESCore. All methods operate on byte arrays
+ *	with explicit offsets and take a key schedule produced by
+ *	AESCore.expandKey().
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class AESModes
+{
+	/** GCM authentication tag size in bytes */
+	public static final int TAG_SIZE = 16;
+
+	/**
+	 *	Encrypts data in electronic codebook mode.
+	 *
+	 *	@param	w		Key schedule
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext in the input buffer
+	 *	@param	len		Length of the plaintext (a multiple of 16)
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the ciphertext in the output buffer
+	 */
+	public static void ecbEncrypt(int[] w, byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		validateLength(len, "ecbEncrypt()");
+
+		for(int i = 0; i < len; i += AESCore.BLOCK_SIZE)
+			AESCore.encryptBlock(w, in, inOff + i, out, outOff + i);
+	}
+
+	/**
+	 *	Encrypts data in cipher block chaining mode.
+	 *
+	 *	@param	w		Key schedule
+	 *	@param	iv		Initialization vector (16 bytes)
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext in the input buffer
+	 *	@param	len		Length of the plaintext (a multiple of 16)
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the ciphertext in the output buffer
+	 */
+	public static void cbcEncrypt(int[] w, byte[] iv, byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		AESCore.validateBlock(iv, "cbcEncrypt()");
+		validateLength(len, "cbcEncrypt()");
+
+		byte[] chain = iv;
+		int chainOff = 0;
+
+		for(int i = 0; i < len; i += AESCore.BLOCK_SIZE)
+		{
+			// Chain the previous ciphertext block into the plaintext block
+			for(int j = 0; j < AESCore.BLOCK_SIZE; j++)
+				out[outOff + i + j] = (byte) (in[inOff + i + j] ^ chain[chainOff + j]);
+
+			AESCore.encryptBlock(w, out, outOff + i, out, outOff + i);
+
+			chain = out;
+			chainOff = outOff + i;
+		}
+	}
+
+	/**
+	 *	Encrypts or decrypts data in counter mode. The counter block is
+	 *	treated as a 128 bit big-endian integer and is advanced in place, so
+	 *	that consecutive calls continue the same keystream.
+	 *
+	 *	@param	w		Key schedule
+	 *	@param	counter	Counter block (16 bytes, advanced in place)
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the input data
+	 *	@param	len		Length of the input data
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the output data
+	 */
+	public static void ctr(int[] w, byte[] counter, byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		AESCore.validateBlock(counter, "ctr()");
+
+		ctr(w, counter, new byte[AESCore.BLOCK_SIZE], in, inOff, len, out, outOff);
+	}
+
+	/**
+	 *	Encrypts or decrypts in counter mode using a caller-supplied buffer
+	 *	for the keystream block, so that repeated calls do not allocate.
+	 */
+	static void ctr(int[] w, byte[] counter, byte[] keystream, byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		for(int i = 0; i < len; i += AESCore.BLOCK_SIZE)
+		{
+			AESCore.encryptBlock(w, counter, 0, keystream, 0);
+			increment(counter, 0);
+
+			int n = Math.min(AESCore.BLOCK_SIZE, len - i);
+			for(int j = 0; j < n; j++)
+				out[outOff + i + j] = (byte) (in[inOff + i + j] ^ keystream[j]);
+		}
+	}
+
+	/**
+	 *	Encrypts data in Galois/counter mode. The ciphertext is written to the
+	 *	output buffer followed by the 16 byte authentication tag.
+	 *
+	 *	@param	w		Key schedule
+	 *	@param	iv		Initialization vector (12 bytes)
+	 *	@param	aad		Additional authenticated data
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext in the input buffer
+	 *	@param	len		Length of the plaintext
+	 *	@param	out		Output buffer, with room for len + 16 bytes
+	 *	@param	outOff	Offset of the ciphertext in the output buffer
+	 */
+	public static void gcmEncrypt(int[] w, byte[] iv, byte[] aad, byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		// Confirm that the initialization vector has the recommended size
+		if(iv.length != 12)
+		{
+			System.out.println("[Error] Invalid IV size input to gcmEncrypt(). Halting execution.");
+			System.exit(1);
+		}
+
+		// Derive the hash subkey H = E(K, 0^128)
+		byte[] h = new byte[AESCore.BLOCK_SIZE];
+		AESCore.encryptBlock(w, h, 0, h, 0);
+		long hHi = longAt(h, 0);
+		long hLo = longAt(h, 8);
+
+		// Pre-counter block J0 = IV || 0^31 || 1
+		byte[] j0 = new byte[AESCore.BLOCK_SIZE];
+		System.arraycopy(iv, 0, j0, 0, 12);
+		j0[15] = 1;
+
+		// Encrypt the plaintext, starting the counter at inc32(J0)
+		byte[] counter = j0.clone();
+		byte[] keystream = new byte[AESCore.BLOCK_SIZE];
+
+		for(int i = 0; i < len; i += AESCore.BLOCK_SIZE)
+		{
+			increment32(counter);
+			AESCore.encryptBlock(w, counter, 0, keystream, 0);
+
+			int n = Math.min(AESCore.BLOCK_SIZE, len - i);
+			for(int j = 0; j < n; j++)
+				out[outOff + i + j] = (byte) (in[inOff + i + j] ^ keystream[j]);
+		}
+
+		// Authenticate the additional data, the ciphertext and their lengths
+		long[] x = new long[2];
+		ghash(x, hHi, hLo, aad, 0, aad.length);
+		ghash(x, hHi, hLo, out, outOff, len);
+
+		x[0] ^= (long) aad.length * 8;
+		x[1] ^= (long) len * 8;
+		multiply(x, hHi, hLo);
+
+		// Tag = E(K, J0) XOR GHASH
+		AESCore.encryptBlock(w, j0, 0, keystream, 0);
+
+		for(int j = 0; j < 8; j++)
+		{
+			out[outOff + len + j]     = (byte) (keystream[j] ^ (x[0] >>> (56 - (8 * j))));
+			out[outOff + len + 8 + j] = (byte) (keystream[8 + j] ^ (x[1] >>> (56 - (8 * j))));
+		}
+	}
+
+	/**
+	 *	Increments a 128 bit big-endian counter block.
+	 *
+	 *	@param	counter	Buffer holding the counter block
+	 *	@param	off		Offset of the counter block
+	 */
+	static void increment(byte[] counter, int off)
+	{
+		for(int i = off + AESCore.BLOCK_SIZE - 1; i >= off; i--)
+		{
+			if(++counter[i] != 0)
+				break;
+		}
+	}
+
+	/**
+	 *	Increments the rightmost 32 bits of a counter block, as required by
+	 *	GCM.
+	 */
+	private static void increment32(byte[] counter)
+	{
+		for(int i = 15; i >= 12; i--)
+		{
+			if(++counter[i] != 0)
+				break;
+		}
+	}
+
+	/**
+	 *	Absorbs data into a running GHASH value, padding the final partial
+	 *	block with zeros.
+	 */
+	private static void ghash(long[] x, long hHi, long hLo, byte[] data, int off, int len)
+	{
+		byte[] block = new byte[AESCore.BLOCK_SIZE];
+
+		for(int i = 0; i < len; i += AESCore.BLOCK_SIZE)
+		{
+			int n = Math.min(AESCore.BLOCK_SIZE, len - i);
+
+			Arrays.fill(block, (byte) 0);
+			System.arraycopy(data, off + i, block, 0, n);
+
+			x[0] ^= longAt(block, 0);
+			x[1] ^= longAt(block, 8);
+			multiply(x, hHi, hLo);
+		}
+	}
+
+	/**
+	 *	Multiplies x by H in GF(2^128) using the bit-reflected GCM
+	 *	representation.
+	 */
+	private static void multiply(long[] x, long hHi, long hLo)
+	{
+		long zHi = 0;
+		long zLo = 0;
+		long vHi = hHi;
+		long vLo = hLo;
+
+		for(int i = 0; i < 128; i++)
+		{
+			long bit = (i < 64) ? (x[0] >>> (63 - i)) : (x[1] >>> (127 - i));
+
+			if((bit & 1) != 0)
+			{
+				zHi ^= vHi;
+				zLo ^= vLo;
+			}
+
+			// Divide V by x, reducing by the GCM polynomial
+			long carry = vLo & 1;
+			vLo = (vLo >>> 1) | (vHi << 63);
+			vHi = vHi >>> 1;
+
+			if(carry != 0)
+				vHi ^= 0xE100000000000000L;
+		}
+
+		x[0] = zHi;
+		x[1] = zLo;
+	}
+
+	/**
+	 *	Reads a big-endian 64 bit value from a byte array.
+	 */
+	private static long longAt(byte[] b, int off)
+	{
+		return ((long) AESCore.word(b, off) << 32) | (AESCore.word(b, off + 4) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 *	Validates that a data length is a whole number of blocks
+	 *
+	 *	@param	len		Length for validation
+	 *	@param	method	The name of the method calling this method
+	 */
+	private static void validateLength(int len, String method)
+	{
+		if(len % AESCore.BLOCK_SIZE != 0)
+		{
+			System.out.println("[Error] Invalid data length input to " + method + ". Halting execution.");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package aes;
+
+import java.util.stream.IntStream;
+
+/**
+ *	This class expands many keys of the same size at once, for workloads
+ *	that use each key for only a block or two. Keys are expanded in groups
+ *	whose schedules are interleaved word by word, so that the independent
+ *	dependency chains of the group can overlap in the processor. A fused
+ *	path encrypts one block per key while deriving the round keys on the
+ *	fly from a rolling window of Nk words, without materializing the full
+ *	schedule.
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class BatchKeySchedule
+{
+	/** Number of key schedules interleaved in one group */
+	private static final int LANES = 4;
+
+	/** Number of keys handled by a single parallel task */
+	private static final int CHUNK_KEYS = 1 << 10;
+
+	/**
+	 *	Expands a batch of keys into their full key schedules. The schedule
+	 *	of key i starts at word i * 4 * (rounds + 1) and can be used in place
+	 *	with AESCore.encryptBlock(w, wOff, rounds, ...).
+	 *
+	 *	@param	keys		Concatenated keys
+	 *	@param	keyLength	Length of every key in bytes (16, 24 or 32)
+	 *	@param	count		Number of keys
+	 *	@return				Concatenated key schedules, 4 * (rounds + 1) words per key
+	 */
+	public static int[] expandKeys(byte[] keys, int keyLength, int count)
+	{
+		int stride = 4 * (AESCore.rounds(keyLength) + 1);
+		int[] w = new int[count * stride];
+		int chunks = (count + CHUNK_KEYS - 1) / CHUNK_KEYS;
+
+		IntStream.range(0, chunks).parallel().forEach(chunk ->
+		{
+			int end = Math.min(count, (chunk + 1) * CHUNK_KEYS);
+
+			for(int first = chunk * CHUNK_KEYS; first < end; first += LANES)
+				expandGroup(keys, keyLength, first, Math.min(LANES, end - first), w, stride);
+		});
+
+		return w;
+	}
+
+	/**
+	 *	Encrypts one block under each key of a batch using the fused
+	 *	expand-and-encrypt path. Block i is encrypted under key i.
+	 *
+	 *	@param	keys		Concatenated keys
+	 *	@param	keyLength	Length of every key in bytes (16, 24 or 32)
+	 *	@param	count		Number of keys
+	 *	@param	in			Plaintext blocks, one per key
+	 *	@param	out			Ciphertext blocks, one per key (may be the input buffer)
+	 */
+	public static void encryptEach(byte[] keys, int keyLength, int count, byte[] in, byte[] out)
+	{
+		AESCore.validateKeyLength(keyLength, "encryptEach()");
+
+		int chunks = (count + CHUNK_KEYS - 1) / CHUNK_KEYS;
+
+		IntStream.range(0, chunks).parallel().forEach(chunk ->
+		{
+			int[] window = new int[12];
+			int end = Math.min(count, (chunk + 1) * CHUNK_KEYS);
+
+			for(int i = chunk * CHUNK_KEYS; i < end; i++)
+				encryptBlock(keys, i * keyLength, keyLength, window, in, i * AESCore.BLOCK_SIZE, out, i * AESCore.BLOCK_SIZE);
+		});
+	}
+
+	/**
+	 *	Encrypts a single block, deriving each round key from the previous
+	 *	Nk words of the schedule as it is needed.
+	 *
+	 *	@param	key			Buffer holding the key
+	 *	@param	keyOff		Offset of the key
+	 *	@param	keyLength	Length of the key in bytes (16, 24 or 32)
+	 *	@param	window		Scratch space for at least 12 words
+	 *	@param	in			Input buffer
+	 *	@param	inOff		Offset of the plaintext block
+	 *	@param	out			Output buffer (may be the input buffer)
+	 *	@param	outOff		Offset of the ciphertext block
+	 */
+	public static void encryptBlock(byte[] key, int keyOff, int keyLength, int[] window, byte[] in, int inOff, byte[] out, int outOff)
+	{
+		int nk = keyLength / 4;
+
+		for(int i = 0; i < nk; i++)
+			window[i] = AESCore.word(key, keyOff + (4 * i));
+
+		encryptWords(window, nk, AESCore.word(in, inOff), AESCore.word(in, inOff + 4), AESCore.word(in, inOff + 8), AESCore.word(in, inOff + 12), false, out, outOff);
+	}
+
+	/**
+	 *	Computes only the first column of the ciphertext of a block given as
+	 *	four columns, under the key held in the first nk words of the window.
+	 *	The final round key is derived only as far as its first word, which
+	 *	is enough to reject almost every wrong key in a search.
+	 *
+	 *	@param	window		Scratch space for at least 12 words, starting with the key
+	 *	@param	nk			Number of 32 bit words in the key (4, 6 or 8)
+	 *	@param	s0			First column of the plaintext
+	 *	@param	s1			Second column of the plaintext
+	 *	@param	s2			Third column of the plaintext
+	 *	@param	s3			Fourth column of the plaintext
+	 *	@return				First column of the ciphertext
+	 */
+	static int firstColumn(int[] window, int nk, int s0, int s1, int s2, int s3)
+	{
+		return encryptWords(window, nk, s0, s1, s2, s3, true, null, 0);
+	}
+
+	/**
+	 *	Encrypts a block given as four columns under the key held in the
+	 *	first nk words of the window, deriving each round key as it is
+	 *	needed.
+	 *
+	 *	@param	window			Scratch space for at least 12 words, starting with the key
+	 *	@param	nk				Number of 32 bit words in the key (4, 6 or 8)
+	 *	@param	s0				First column of the plaintext
+	 *	@param	s1				Second column of the plaintext
+	 *	@param	s2				Third column of the plaintext
+	 *	@param	s3				Fourth column of the plaintext
+	 *	@param	firstColumnOnly	Whether to stop after the first output column
+	 *	@param	out				Output buffer, unused when firstColumnOnly is set
+	 *	@param	outOff			Offset of the ciphertext block
+	 *	@return					First column of the ciphertext
+	 */
+	private static int encryptWords(int[] window, int nk, int s0, int s1, int s2, int s3, boolean firstColumnOnly, byte[] out, int outOff)
+	{
+		int rounds = nk + 6;
+
+		// Slots 0 to nk - 1 hold the last nk words of the schedule, with word i
+		// in slot i % nk, and slots 8 to 11 hold the current round key
+		int slot = 0;
+		int rcon = 0;
+
+		s0 ^= window[0];
+		s1 ^= window[1];
+		s2 ^= window[2];
+		s3 ^= window[3];
+
+		for(int round = 1; round <= rounds; round++)
+		{
+			int words = (round == rounds && firstColumnOnly) ? 1 : 4;
+
+			// Take the words of this round key from the input key, or derive them
+			// in order from the previous nk words
+			for(int j = 0; j < words; j++)
+			{
+				int i = (4 * round) + j;
+
+				if(i < nk)
+				{
+					window[8 + j] = window[i];
+					continue;
+				}
+
+				int temp = window[((slot == 0) ? nk : slot) - 1];
+
+				if(slot == 0)
+					temp = AESCore.subWord(AESCore.rotWord(temp)) ^ (AESTables.RCON[rcon++] << 24);
+				else if(nk > 6 && slot == 4)
+					temp = AESCore.subWord(temp);
+
+				// Word i - nk occupies the slot that word i replaces
+				window[slot] ^= temp;
+				window[8 + j] = window[slot];
+
+				if(++slot == nk)
+					slot = 0;
+			}
+
+			if(round == rounds)
+				break;
+
+			int t0 = AESTables.TE0[s0 >>> 24] ^ AESTables.TE1[(s1 >>> 16) & 0xFF] ^ AESTables.TE2[(s2 >>> 8) & 0xFF] ^ AESTables.TE3[s3 & 0xFF] ^ window[8];
+			int t1 = AESTables.TE0[s1 >>> 24] ^ AESTables.TE1[(s2 >>> 16) & 0xFF] ^ AESTables.TE2[(s3 >>> 8) & 0xFF] ^ AESTables.TE3[s0 & 0xFF] ^ window[9];
+			int t2 = AESTables.TE0[s2 >>> 24] ^ AESTables.TE1[(s3 >>> 16) & 0xFF] ^ AESTables.TE2[(s0 >>> 8) & 0xFF] ^ AESTables.TE3[s1 & 0xFF] ^ window[10];
+			int t3 = AESTables.TE0[s3 >>> 24] ^ AESTables.TE1[(s0 >>> 16) & 0xFF] ^ AESTables.TE2[(s1 >>> 8) & 0xFF] ^ AESTables.TE3[s2 & 0xFF] ^ window[11];
+
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+
+		// The final round omits MixColumns
+		int c0 = AESCore.finalColumn(s0, s1, s2, s3) ^ window[8];
+
+		if(!firstColumnOnly)
+		{
+			AESCore.putWord(c0, out, outOff);
+			AESCore.putWord(AESCore.finalColumn(s1, s2, s3, s0) ^ window[9], out, outOff + 4);
+			AESCore.putWord(AESCore.finalColumn(s2, s3, s0, s1) ^ window[10], out, outOff + 8);
+			AESCore.putWord(AESCore.finalColumn(s3, s0, s1, s2) ^ window[11], out, outOff + 12);
+		}
+
+		return c0;
+	}
+
+	/**
+	 *	Expands a group of up to four consecutive keys, advancing every
+	 *	schedule of the group by one word before moving to the next word.
+	 */
+	private static void expandGroup(byte[] keys, int keyLength, int first, int lanes, int[] w, int stride)
+	{
+		int nk = keyLength / 4;
+
+		// Load the first Nk words of every key
+		for(int lane = 0; lane < lanes; lane++)
+		{
+			int base = (first + lane) * stride;
+			int keyOff = (first + lane) * keyLength;
+
+			for(int i = 0; i < nk; i++)
+				w[base + i] = AESCore.word(keys, keyOff + (4 * i));
+		}
+
+		// Derive the remaining words, one word of every schedule at a time
+		for(int i = nk; i < stride; i++)
+		{
+			int base = (first * stride) + i;
+
+			for(int lane = 0; lane < lanes; lane++, base += stride)
+			{
+				int temp = w[base - 1];
+
+				if(i % nk == 0)
+					temp = AESCore.subWord(AESCore.rotWord(temp)) ^ (AESTables.RCON[(i / nk) - 1] << 24);
+				else if(nk > 6 && i % nk == 4)
+					temp = AESCore.subWord(temp);
+
+				w[base] = w[base - nk] ^ temp;
+			}
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package aes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ *	Read-only seekable channel over a file encrypted in counter mode. The
+ *	counter for any offset is computed directly from the initial counter
+ *	block, so a read decrypts only the pages it touches. Decrypted pages
+ *	are kept in a bounded least-recently-used cache, and sequential scans
+ *	read and decrypt the following pages ahead of use in a single file read.
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class CtrFileChannel implements SeekableByteChannel
+{
+	private final FileChannel file;
+	private final int[] w;
+	private final byte[] iv;
+	private final int pageSize;
+	private final int readAhead;
+	private final LinkedHashMap<Long, byte[]> cache;
+
+	/** Wiped pages left by evictions, reused before allocating new pages */
+	private final ArrayDeque<byte[]> spare = new ArrayDeque<byte[]>();
+
+	/** Ciphertext of the pages loaded by one miss */
+	private final ByteBuffer buffer;
+
+	/** Final partial page of the file, which is never cached */
+	private final byte[] tail;
+
+	private final byte[] counter = new byte[AESCore.BLOCK_SIZE];
+	private final byte[] keystream = new byte[AESCore.BLOCK_SIZE];
+
+	private long position;
+	private long lastPage = -1;
+
+	/**
+	 *	Opens an encrypted file for reading.
+	 *
+	 *	@param	path		Encrypted file
+	 *	@param	key			Encryption key (16, 24 or 32 bytes)
+	 *	@param	iv			Counter block of the first byte of the file (16 bytes)
+	 *	@param	pageSize	Page size in bytes (a multiple of 16)
+	 *	@param	cachePages	Maximum number of decrypted pages kept in the cache
+	 *	@param	readAhead	Number of pages read ahead during sequential scans
+	 */
+	public CtrFileChannel(Path path, byte[] key, byte[] iv, int pageSize, int cachePages, int readAhead) throws IOException
+	{
+		if(key.length != 16 && key.length != 24 && key.length != 32)
+			throw new IllegalArgumentException("Invalid key length " + key.length);
+
+		if(iv.length != AESCore.BLOCK_SIZE)
+			throw new IllegalArgumentException("Invalid counter block length " + iv.length);
+
+		// Confirm that pages are whole blocks and that read-ahead fits in the cache
+		if(pageSize < AESCore.BLOCK_SIZE || pageSize % AESCore.BLOCK_SIZE != 0 || readAhead < 0 || cachePages < readAhead + 1
+			|| (long) (readAhead + 1) * pageSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid page configuration");
+
+		this.w = AESCore.expandKey(key);
+		this.iv = iv.clone();
+		this.pageSize = pageSize;
+		this.readAhead = readAhead;
+		this.cache = new LinkedHashMap<Long, byte[]>(16, 0.75f, true)
+		{
+			protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest)
+			{
+				if(size() <= cachePages)
+					return false;
+
+				// Plaintext does not outlive its cache entry
+				Arrays.fill(eldest.getValue(), (byte) 0);
+				spare.push(eldest.getValue());
+				return true;
+			}
+		};
+
+		this.buffer = ByteBuffer.allocate((readAhead + 1) * pageSize);
+		this.tail = new byte[pageSize];
+
+		this.file = FileChannel.open(path, StandardOpenOption.READ);
+	}
+
+	public synchronized int read(ByteBuffer dst) throws IOException
+	{
+		validateOpen();
+
+		long size = file.size();
+
+		if(position >= size)
+			return -1;
+
+		int total = 0;
+
+		while(dst.hasRemaining() && position < size)
+		{
+			long index = position / pageSize;
+			int offset = (int) (position % pageSize);
+			byte[] page = page(index, size);
+
+			int n = (int) Math.min(dst.remaining(), Math.min(pageSize - offset, size - position));
+			dst.put(page, offset, n);
+
+			position += n;
+			total += n;
+		}
+
+		return total;
+	}
+
+	public synchronized long position() throws IOException
+	{
+		validateOpen();
+
+		return position;
+	}
+
+	public synchronized SeekableByteChannel position(long newPosition) throws IOException
+	{
+		validateOpen();
+
+		if(newPosition < 0)
+			throw new IllegalArgumentException("Negative position");
+
+		position = newPosition;
+		return this;
+	}
+
+	public long size() throws IOException
+	{
+		return file.size();
+	}
+
+	public int write(ByteBuffer src)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	public SeekableByteChannel truncate(long size)
+	{
+		throw new NonWritableChannelException();
+	}
+
+	public boolean isOpen()
+	{
+		return file.isOpen();
+	}
+
+	/**
+	 *	Closes the file and wipes every cached page.
+	 */
+	public synchronized void close() throws IOException
+	{
+		for(byte[] page : cache.values())
+			Arrays.fill(page, (byte) 0);
+
+		cache.clear();
+		spare.clear();
+		Arrays.fill(tail, (byte) 0);
+		Arrays.fill(keystream, (byte) 0);
+		Arrays.fill(w, 0);
+		file.close();
+	}
+
+	/**
+	 *	Returns a decrypted page, loading it on a cache miss. When the page
+	 *	directly follows the previously loaded page, the next pages that are
+	 *	not already cached are read and decrypted along with it. Only pages
+	 *	that were read in full are cached, so the final partial page of the
+	 *	file is decrypted again on every miss. Pages wiped on eviction are
+	 *	reused, so a miss allocates only while the cache is filling.
+	 *
+	 *	@param	index	Page index
+	 *	@param	size	Current size of the file
+	 *	@return			Decrypted page (the final page may be partly filled)
+	 */
+	private byte[] page(long index, long size) throws IOException
+	{
+		byte[] page = cache.get(index);
+
+		if(page != null)
+			return page;
+
+		int count = 1;
+
+		if(index == lastPage + 1)
+			count += readAhead;
+
+		// Do not read past the end of the file
+		long pagesInFile = (size + pageSize - 1) / pageSize;
+		count = (int) Math.min(count, pagesInFile - index);
+
+		// Stop the read-ahead at the first page that is already cached
+		for(int i = 1; i < count; i++)
+		{
+			if(cache.containsKey(index + i))
+			{
+				count = i;
+				break;
+			}
+		}
+
+		// Read the ciphertext of every page in one call
+		long start = index * pageSize;
+		int length = (int) Math.min((long) count * pageSize, size - start);
+
+		buffer.clear().limit(length);
+
+		while(buffer.hasRemaining())
+		{
+			if(file.read(buffer, start + buffer.position()) < 0)
+				break;
+		}
+
+		// The file has shrunk since its size was taken
+		if(buffer.position() < Math.min(pageSize, length))
+			throw new EOFException("Unexpected end of file at page " + index);
+
+		byte[] data = buffer.array();
+		byte[] requested = null;
+
+		for(int i = 0; i < count; i++)
+		{
+			int n = Math.min(pageSize, buffer.position() - (i * pageSize));
+
+			if(n <= 0)
+				break;
+
+			// Partial pages are not cached, so they are decrypted into the tail
+			byte[] decrypted = tail;
+
+			if(n == pageSize)
+				decrypted = spare.isEmpty() ? new byte[pageSize] : spare.pop();
+			else
+				Arrays.fill(tail, n, pageSize, (byte) 0);
+
+			counterAt((index + i) * (pageSize / AESCore.BLOCK_SIZE), counter);
+			AESModes.ctr(w, counter, keystream, data, i * pageSize, n, decrypted, 0);
+
+			if(i == 0)
+				requested = decrypted;
+
+			if(n == pageSize)
+			{
+				cache.put(index + i, decrypted);
+				lastPage = index + i;
+			}
+		}
+
+		return requested;
+	}
+
+	/**
+	 *	Computes the counter block for the given block of the file by adding
+	 *	the block number to the initial counter block as a 128 bit big-endian
+	 *	integer.
+	 *
+	 *	@param	block	Block number within the file
+	 *	@param	counter	Output counter block (16 bytes)
+	 */
+	void counterAt(long block, byte[] counter)
+	{
+		long carry = block;
+
+		for(int i = AESCore.BLOCK_SIZE - 1; i >= 0; i--)
+		{
+			long sum = (iv[i] & 0xFF) + (carry & 0xFF);
+
+			counter[i] = (byte) sum;
+			carry = (carry >>> 8) + (sum >>> 8);
+		}
+	}
+
+	private void validateOpen() throws IOException
+	{
+		if(!file.isOpen())
+			throw new ClosedChannelException();
+	}
+}
@@ -0,0 +1,42 @@
+package aes;
+
+/**
+ *	Command-line tool that encrypts hexadecimal blocks with a hexadecimal
+ *	key in electronic codebook mode and prints each ciphertext block. It has
+ *	no dependencies beyond AESCore and the generated tables, so that it can
+ *	be compiled ahead of time into a fast-starting native image.
+ *
+ *	Usage: java aes.Encrypt <key> <block> [block ...]
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class Encrypt
+{
+	public static void main(String[] args)
+	{
+		if(args.length < 2)
+		{
+			System.out.println("Usage: java aes.Encrypt <key> <block> [block ...]");
+			System.exit(1);
+		}
+
+		int[] w = AESCore.expandKey(AESCore.parseHex(args[0], "Encrypt.main()"));
+		byte[] block = new byte[AESCore.BLOCK_SIZE];
+		StringBuilder output = new StringBuilder();
+
+		for(int i = 1; i < args.length; i++)
+		{
+			byte[] plaintext = AESCore.parseHex(args[i], "Encrypt.main()");
+			AESCore.validateBlock(plaintext, "Encrypt.main()");
+
+			AESCore.encryptBlock(w, plaintext, 0, block, 0);
+
+			output.append(AESCore.toHex(block));
+			output.append(System.lineSeparator());
+		}
+
+		System.out.print(output);
+	}
+}
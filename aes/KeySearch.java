@@ -0,0 +1,446 @@
+package aes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ *	Searches for the unknown bytes of a key given one plaintext/ciphertext
+ *	pair and the remaining key bytes, as in teaching and CTF exercises. The
+ *	keyspace is split into shards that worker threads take in order. Each
+ *	candidate key is updated in place from the previous one, its round keys
+ *	are derived on the fly, and only the first output column of the final
+ *	round is computed before a candidate is rejected. Progress is reported
+ *	periodically and saved to a checkpoint file from which an interrupted
+ *	search can be resumed.
+ *
+ *	Usage: java aes.KeySearch -plaintext <hex> -ciphertext <hex>
+ *	                          -key <hex with ?? for unknown bytes>
+ *	                          [-checkpoint file] [-threads n] [-shard bits]
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class KeySearch
+{
+	/** Largest number of unknown key bytes that can be searched */
+	public static final int MAX_UNKNOWN = 7;
+
+	private final byte[] plaintext;
+	private final byte[] ciphertext;
+	private final byte[] template;
+	private final int[] unknown;
+	private final int shardBits;
+
+	private final AtomicLong nextShard = new AtomicLong();
+	private final AtomicLong tested = new AtomicLong();
+	private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<Long>();
+	private final AtomicReference<byte[]> found = new AtomicReference<byte[]>();
+
+	/**
+	 *	Creates a search.
+	 *
+	 *	@param	plaintext	Known plaintext block (16 bytes)
+	 *	@param	ciphertext	Ciphertext block of the plaintext (16 bytes)
+	 *	@param	template	Key with the known bytes filled in (16, 24 or 32 bytes)
+	 *	@param	unknown		Positions of the unknown key bytes
+	 *	@param	shardBits	Base 2 logarithm of the number of keys per shard
+	 */
+	public KeySearch(byte[] plaintext, byte[] ciphertext, byte[] template, int[] unknown, int shardBits)
+	{
+		AESCore.validateBlock(plaintext, "KeySearch(plaintext)");
+		AESCore.validateBlock(ciphertext, "KeySearch(ciphertext)");
+		AESCore.validateKeyLength(template.length, "KeySearch(template)");
+
+		// Confirm that the keyspace can be counted in a long
+		if(unknown.length < 1 || unknown.length > MAX_UNKNOWN || shardBits < 0 || shardBits > 8 * unknown.length)
+		{
+			System.out.println("[Error] Invalid search size input to KeySearch(). Halting execution.");
+			System.exit(1);
+		}
+
+		for(int i = 0; i < unknown.length; i++)
+		{
+			if(unknown[i] < 0 || unknown[i] >= template.length)
+			{
+				System.out.println("[Error] Invalid key byte position input to KeySearch(). Halting execution.");
+				System.exit(1);
+			}
+		}
+
+		this.plaintext = plaintext.clone();
+		this.ciphertext = ciphertext.clone();
+		this.template = template.clone();
+		this.unknown = unknown.clone();
+		this.shardBits = shardBits;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		String plaintext = null;
+		String ciphertext = null;
+		String key = null;
+		Path checkpoint = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int shardBits = 20;
+
+		// Parse command-line options
+		for(int i = 0; i + 1 < args.length; i += 2)
+		{
+			switch(args[i])
+			{
+				case "-plaintext":  plaintext = args[i + 1]; break;
+				case "-ciphertext": ciphertext = args[i + 1]; break;
+				case "-key":        key = args[i + 1]; break;
+				case "-checkpoint": checkpoint = Paths.get(args[i + 1]); break;
+				case "-threads":    threads = Integer.parseInt(args[i + 1]); break;
+				case "-shard":      shardBits = Integer.parseInt(args[i + 1]); break;
+				default:            usage(); break;
+			}
+		}
+
+		if(plaintext == null || ciphertext == null || key == null || args.length % 2 != 0)
+			usage();
+
+		// A search without workers would report every key as not found
+		if(threads < 1)
+			usage();
+
+		// Unknown key bytes are written as ??
+		List<Integer> positions = new ArrayList<Integer>();
+		StringBuilder known = new StringBuilder();
+
+		if(key.length() % 2 != 0)
+		{
+			System.out.println("[Error] Invalid hexadecimal input to KeySearch.main(). Halting execution.");
+			System.exit(1);
+		}
+
+		for(int i = 0; i + 1 < key.length(); i += 2)
+		{
+			if(key.startsWith("??", i))
+			{
+				positions.add(i / 2);
+				known.append("00");
+			}
+			else
+				known.append(key, i, i + 2);
+		}
+
+		int[] unknown = new int[positions.size()];
+		for(int i = 0; i < unknown.length; i++)
+			unknown[i] = positions.get(i);
+
+		shardBits = Math.min(shardBits, 8 * unknown.length);
+
+		KeySearch search = new KeySearch(AESCore.parseHex(plaintext, "KeySearch.main()"), AESCore.parseHex(ciphertext, "KeySearch.main()"), AESCore.parseHex(known.toString(), "KeySearch.main()"), unknown, shardBits);
+
+		long start = System.nanoTime();
+		byte[] result = search.search(threads, checkpoint, 5000);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("Tested %d keys in %.1f s (%.0f keys/sec)%n", search.tested(), seconds, search.tested() / seconds);
+
+		if(result == null)
+		{
+			System.out.println("No key found");
+			System.exit(1);
+		}
+
+		System.out.println("Key found: " + AESCore.toHex(result));
+	}
+
+	/**
+	 *	Runs the search until the key is found or the keyspace is exhausted.
+	 *	If the checkpoint file exists, the search resumes from it.
+	 *
+	 *	@param	threads			Number of worker threads
+	 *	@param	checkpoint		Checkpoint file, or null to run without one
+	 *	@param	reportMillis	Interval between progress reports
+	 *	@return					The key, or null if no candidate matched
+	 */
+	public byte[] search(int threads, Path checkpoint, long reportMillis) throws IOException, InterruptedException
+	{
+		if(threads < 1)
+		{
+			System.out.println("[Error] Invalid thread count input to search(). Halting execution.");
+			System.exit(1);
+		}
+
+		if(checkpoint != null && Files.exists(checkpoint))
+			resume(checkpoint);
+
+		long shards = 1L << ((8 * unknown.length) - shardBits);
+		long resumedAt = nextShard.get() << shardBits;
+
+		if(found.get() != null)
+			return found.get().clone();
+
+		// Save the checkpoint if the search is interrupted
+		Thread hook = null;
+
+		if(checkpoint != null)
+		{
+			hook = new Thread(() ->
+			{
+				try
+				{
+					save(checkpoint);
+				}
+				catch(IOException e)
+				{
+					System.out.println("[Error] Could not save checkpoint " + checkpoint + ": " + e.getMessage());
+				}
+			});
+
+			Runtime.getRuntime().addShutdownHook(hook);
+		}
+
+		Thread[] workers = new Thread[threads];
+
+		for(int t = 0; t < threads; t++)
+		{
+			workers[t] = new Thread(() ->
+			{
+				long shard;
+
+				while(found.get() == null && (shard = claimShard(shards)) >= 0)
+				{
+					searchShard(shard);
+					inFlight.remove(shard);
+				}
+			}, "key-search-" + t);
+
+			workers[t].start();
+		}
+
+		// Report progress and save the checkpoint until every worker has finished
+		long start = System.nanoTime();
+		long total = shards << shardBits;
+
+		for(Thread worker : workers)
+		{
+			while(worker.isAlive())
+			{
+				worker.join(reportMillis);
+
+				if(worker.isAlive())
+				{
+					double seconds = (System.nanoTime() - start) / 1e9;
+					long done = resumedAt + tested.get();
+
+					System.out.printf("Progress: %d of %d keys (%.2f%%), %.0f keys/sec%n",
+						done, total, (100.0 * done) / total, tested.get() / seconds);
+
+					if(checkpoint != null)
+						save(checkpoint);
+				}
+			}
+		}
+
+		if(checkpoint != null)
+		{
+			Runtime.getRuntime().removeShutdownHook(hook);
+			save(checkpoint);
+		}
+
+		byte[] key = found.get();
+		return (key == null) ? null : key.clone();
+	}
+
+	/**
+	 *	Returns the number of candidate keys tested by this run.
+	 */
+	public long tested()
+	{
+		return tested.get();
+	}
+
+	/**
+	 *	Takes the next shard and marks it as in progress.
+	 *
+	 *	@return		Shard index, or -1 when every shard has been taken
+	 */
+	private synchronized long claimShard(long shards)
+	{
+		long shard = nextShard.get();
+
+		if(shard >= shards)
+			return -1;
+
+		inFlight.add(shard);
+		nextShard.set(shard + 1);
+
+		return shard;
+	}
+
+	/**
+	 *	Tests every candidate key of a shard.
+	 *
+	 *	@param	shard	Shard index
+	 */
+	private void searchShard(long shard)
+	{
+		int nk = template.length / 4;
+		int[] keyWords = new int[nk];
+		int[] window = new int[12];
+
+		int p0 = AESCore.word(plaintext, 0);
+		int p1 = AESCore.word(plaintext, 4);
+		int p2 = AESCore.word(plaintext, 8);
+		int p3 = AESCore.word(plaintext, 12);
+		int c0 = AESCore.word(ciphertext, 0);
+
+		// The first unknown byte changes on every candidate, so locate it once
+		int lowWord = unknown[0] / 4;
+		int lowShift = 24 - (8 * (unknown[0] % 4));
+		int lowMask = ~(0xFF << lowShift);
+
+		long first = shard << shardBits;
+		long end = first + (1L << shardBits);
+		long count = 0;
+
+		for(long v = first; v < end; v++)
+		{
+			// Rebuild the key when a carry reaches the other unknown bytes, and
+			// otherwise replace only the first unknown byte
+			if(v == first || (v & 0xFF) == 0)
+			{
+				// Stop early once another worker has found the key
+				if(found.get() != null)
+					break;
+
+				loadCandidate(v, keyWords);
+			}
+			else
+				keyWords[lowWord] = (keyWords[lowWord] & lowMask) | ((int) (v & 0xFF) << lowShift);
+
+			count++;
+
+			System.arraycopy(keyWords, 0, window, 0, nk);
+
+			if(BatchKeySchedule.firstColumn(window, nk, p0, p1, p2, p3) != c0)
+				continue;
+
+			// Confirm the full block before reporting a match
+			byte[] key = new byte[template.length];
+			for(int i = 0; i < nk; i++)
+				AESCore.putWord(keyWords[i], key, 4 * i);
+
+			byte[] block = new byte[AESCore.BLOCK_SIZE];
+			AESCore.encryptBlock(AESCore.expandKey(key), plaintext, 0, block, 0);
+
+			if(Arrays.equals(block, ciphertext))
+			{
+				found.compareAndSet(null, key);
+				break;
+			}
+		}
+
+		tested.addAndGet(count);
+	}
+
+	/**
+	 *	Fills the key words with the template and the unknown bytes of the
+	 *	given candidate.
+	 */
+	private void loadCandidate(long v, int[] keyWords)
+	{
+		byte[] key = template.clone();
+
+		for(int i = 0; i < unknown.length; i++)
+			key[unknown[i]] = (byte) (v >>> (8 * i));
+
+		for(int i = 0; i < keyWords.length; i++)
+			keyWords[i] = AESCore.word(key, 4 * i);
+	}
+
+	/**
+	 *	Writes the search parameters and the lowest shard that has not been
+	 *	completed to the checkpoint file, replacing it atomically.
+	 */
+	private synchronized void save(Path checkpoint) throws IOException
+	{
+		Properties state = parameters();
+
+		// Shards above an unfinished shard may be done, but are searched again on resume
+		Long oldest = inFlight.isEmpty() ? null : inFlight.first();
+		state.setProperty("resume", Long.toString((oldest == null) ? nextShard.get() : oldest));
+
+		if(found.get() != null)
+			state.setProperty("found", AESCore.toHex(found.get()));
+
+		Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+
+		try(OutputStream out = Files.newOutputStream(temp))
+		{
+			state.store(out, "KeySearch checkpoint");
+		}
+
+		Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 *	Restores the search position from a checkpoint file written for the
+	 *	same parameters.
+	 */
+	private void resume(Path checkpoint) throws IOException
+	{
+		Properties state = new Properties();
+
+		try(InputStream in = Files.newInputStream(checkpoint))
+		{
+			state.load(in);
+		}
+
+		Properties expected = parameters();
+
+		for(String name : expected.stringPropertyNames())
+		{
+			if(!expected.getProperty(name).equals(state.getProperty(name)))
+			{
+				System.out.println("[Error] Checkpoint " + checkpoint + " was written for a different search. Halting execution.");
+				System.exit(1);
+			}
+		}
+
+		nextShard.set(Long.parseLong(state.getProperty("resume", "0")));
+
+		if(state.getProperty("found") != null)
+			found.set(AESCore.parseHex(state.getProperty("found"), "KeySearch.resume()"));
+	}
+
+	/**
+	 *	Returns the parameters that identify this search in a checkpoint.
+	 */
+	private Properties parameters()
+	{
+		Properties p = new Properties();
+
+		p.setProperty("plaintext", AESCore.toHex(plaintext));
+		p.setProperty("ciphertext", AESCore.toHex(ciphertext));
+		p.setProperty("template", AESCore.toHex(template));
+		p.setProperty("unknown", Arrays.toString(unknown));
+		p.setProperty("shardBits", Integer.toString(shardBits));
+
+		return p;
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: java aes.KeySearch -plaintext <hex> -ciphertext <hex> -key <hex with ?? for unknown bytes> [-checkpoint file] [-threads n] [-shard bits]");
+		System.exit(1);
+	}
+}
@@ -0,0 +1,290 @@
+package aes;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *	This class generates a counter mode keystream ahead of use. A bounded
+ *	pool of pages is filled with keystream by a worker thread and refilled
+ *	whenever the number of ready pages falls to a low-water mark, so that
+ *	encryption on the calling thread reduces to an XOR against keystream
+ *	that is already available. Pages are recycled, and unused keystream is
+ *	wiped when the cache is rekeyed or closed.
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class KeystreamCache
+{
+	private final ExecutorService workers;
+	private final boolean ownsWorkers;
+	private final int lowWater;
+	private final ArrayBlockingQueue<byte[]> free;
+	private final ArrayBlockingQueue<byte[]> ready;
+	private final AtomicBoolean refilling = new AtomicBoolean();
+
+	// Guards the key schedule, the counter and the contents of the ready queue
+	private final Object producerLock = new Object();
+
+	private int[] w;
+	private byte[] counter;
+	private boolean closed;
+
+	// Page currently being consumed, and the position of the next unused byte
+	private byte[] page;
+	private int pos;
+
+	/**
+	 *	Creates a cache that refills on its own background thread.
+	 *
+	 *	@param	key			Encryption key (16, 24 or 32 bytes)
+	 *	@param	iv			Initial counter block (16 bytes)
+	 *	@param	depth		Number of keystream pages in the pool
+	 *	@param	pageBlocks	Number of keystream blocks per page
+	 *	@param	lowWater	Number of ready pages at which a refill starts
+	 */
+	public KeystreamCache(byte[] key, byte[] iv, int depth, int pageBlocks, int lowWater)
+	{
+		this(key, iv, depth, pageBlocks, lowWater, Executors.newSingleThreadExecutor(r ->
+		{
+			Thread t = new Thread(r, "keystream-cache");
+			t.setDaemon(true);
+			return t;
+		}), true);
+	}
+
+	/**
+	 *	Creates a cache that refills on the given worker threads.
+	 *
+	 *	@param	key			Encryption key (16, 24 or 32 bytes)
+	 *	@param	iv			Initial counter block (16 bytes)
+	 *	@param	depth		Number of keystream pages in the pool
+	 *	@param	pageBlocks	Number of keystream blocks per page
+	 *	@param	lowWater	Number of ready pages at which a refill starts
+	 *	@param	workers		Executor used for refills
+	 */
+	public KeystreamCache(byte[] key, byte[] iv, int depth, int pageBlocks, int lowWater, ExecutorService workers)
+	{
+		this(key, iv, depth, pageBlocks, lowWater, workers, false);
+	}
+
+	private KeystreamCache(byte[] key, byte[] iv, int depth, int pageBlocks, int lowWater, ExecutorService workers, boolean ownsWorkers)
+	{
+		AESCore.validateBlock(iv, "KeystreamCache()");
+
+		// Confirm that the pool can hold a page in use and a page in reserve
+		if(depth < 2 || pageBlocks < 1 || lowWater < 0 || lowWater >= depth)
+		{
+			System.out.println("[Error] Invalid pool configuration input to KeystreamCache(). Halting execution.");
+			System.exit(1);
+		}
+
+		this.workers = workers;
+		this.ownsWorkers = ownsWorkers;
+		this.lowWater = lowWater;
+		this.free = new ArrayBlockingQueue<byte[]>(depth);
+		this.ready = new ArrayBlockingQueue<byte[]>(depth);
+		this.w = AESCore.expandKey(key);
+		this.counter = iv.clone();
+
+		for(int i = 0; i < depth; i++)
+			free.add(new byte[pageBlocks * AESCore.BLOCK_SIZE]);
+
+		refill();
+	}
+
+	/**
+	 *	Encrypts or decrypts data by XORing it with the next bytes of the
+	 *	keystream.
+	 *
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the input data
+	 *	@param	len		Length of the input data
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the output data
+	 */
+	public synchronized void crypt(byte[] in, int inOff, int len, byte[] out, int outOff)
+	{
+		validateOpen("crypt()");
+
+		int done = 0;
+
+		while(done < len)
+		{
+			if(page == null || pos == page.length)
+				nextPage();
+
+			int n = Math.min(len - done, page.length - pos);
+
+			for(int i = 0; i < n; i++)
+				out[outOff + done + i] = (byte) (in[inOff + done + i] ^ page[pos + i]);
+
+			// Keystream is single use, so wipe it as it is consumed
+			Arrays.fill(page, pos, pos + n, (byte) 0);
+
+			pos += n;
+			done += n;
+		}
+	}
+
+	/**
+	 *	Replaces the key and counter. All keystream generated under the old
+	 *	key that has not been used is wiped before the new key takes effect.
+	 *
+	 *	@param	key		New encryption key (16, 24 or 32 bytes)
+	 *	@param	iv		New initial counter block (16 bytes)
+	 */
+	public synchronized void rekey(byte[] key, byte[] iv)
+	{
+		validateOpen("rekey()");
+		AESCore.validateBlock(iv, "rekey()");
+
+		int[] next = AESCore.expandKey(key);
+
+		synchronized(producerLock)
+		{
+			wipe();
+
+			Arrays.fill(w, 0);
+			Arrays.fill(counter, (byte) 0);
+
+			w = next;
+			counter = iv.clone();
+		}
+
+		refill();
+	}
+
+	/**
+	 *	Wipes all keystream and key material and stops the background thread
+	 *	if the cache created it.
+	 */
+	public synchronized void close()
+	{
+		if(closed)
+			return;
+
+		synchronized(producerLock)
+		{
+			closed = true;
+			wipe();
+
+			Arrays.fill(w, 0);
+			Arrays.fill(counter, (byte) 0);
+		}
+
+		if(ownsWorkers)
+			workers.shutdownNow();
+	}
+
+	/**
+	 *	Retires the current page and takes the next ready page, waiting for
+	 *	the worker if none is ready yet.
+	 */
+	private void nextPage()
+	{
+		if(page != null)
+			free.add(page);
+
+		page = ready.poll();
+
+		if(page == null)
+		{
+			refill();
+
+			try
+			{
+				page = ready.take();
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for keystream", e);
+			}
+		}
+
+		pos = 0;
+
+		if(ready.size() <= lowWater)
+			refill();
+	}
+
+	/**
+	 *	Schedules a refill of all free pages unless one is already running.
+	 */
+	private void refill()
+	{
+		if(!refilling.compareAndSet(false, true))
+			return;
+
+		workers.execute(() ->
+		{
+			do
+			{
+				byte[] buffer;
+
+				while((buffer = free.poll()) != null)
+				{
+					synchronized(producerLock)
+					{
+						if(closed)
+							return;
+
+						// Generate the page under the current key and counter
+						for(int off = 0; off < buffer.length; off += AESCore.BLOCK_SIZE)
+						{
+							AESCore.encryptBlock(w, counter, 0, buffer, off);
+							AESModes.increment(counter, 0);
+						}
+
+						ready.add(buffer);
+					}
+				}
+
+				refilling.set(false);
+			}
+			// Pick up pages freed after the last poll but before the flag was cleared
+			while(!free.isEmpty() && refilling.compareAndSet(false, true));
+		});
+	}
+
+	/**
+	 *	Wipes the current page and every ready page and returns them to the
+	 *	free pool. Must be called while holding the producer lock.
+	 */
+	private void wipe()
+	{
+		byte[] buffer;
+
+		while((buffer = ready.poll()) != null)
+		{
+			Arrays.fill(buffer, (byte) 0);
+			free.add(buffer);
+		}
+
+		if(page != null)
+		{
+			Arrays.fill(page, (byte) 0);
+			free.add(page);
+			page = null;
+		}
+	}
+
+	/**
+	 *	Confirms that the cache has not been closed
+	 *
+	 *	@param	method	The name of the method calling this method
+	 */
+	private void validateOpen(String method)
+	{
+		if(closed)
+		{
+			System.out.println("[Error] KeystreamCache used after close() in " + method + ". Halting execution.");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package aes;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ *	This class evaluates reduced-round variants of the Advanced Encryption
+ *	Standard for differential and integral (square) cryptanalysis. The
+ *	number of rounds, the layers applied in each round, and the order of
+ *	those layers are configurable. Batches of chosen plaintexts are
+ *	evaluated in parallel and results are aggregated into primitive arrays.
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class ReducedRoundEngine
+{
+	/** Layer mask bit for the ByteSubstitution layer */
+	public static final int BYTE_SUBSTITUTION = 1;
+
+	/** Layer mask bit for the ShiftRows layer */
+	public static final int SHIFT_ROWS = 2;
+
+	/** Layer mask bit for the MixColumns layer */
+	public static final int MIX_COLUMNS = 4;
+
+	/** Layer mask bit for the KeyAddition layer */
+	public static final int KEY_ADDITION = 8;
+
+	/** Layer mask with every layer enabled */
+	public static final int ALL_LAYERS = BYTE_SUBSTITUTION | SHIFT_ROWS | MIX_COLUMNS | KEY_ADDITION;
+
+	/** Mask flag that keeps MixColumns in the final round */
+	public static final int FULL_LAST_ROUND = 16;
+
+	/** Standard order of the layers within a round */
+	public static final int[] STANDARD_ORDER = {BYTE_SUBSTITUTION, SHIFT_ROWS, MIX_COLUMNS, KEY_ADDITION};
+
+	/** Number of blocks evaluated by a single parallel task */
+	private static final int CHUNK_BLOCKS = 1 << 12;
+
+	private final int[] w;
+	private final int rounds;
+	private final boolean mixLastRound;
+
+	/** Whether every layer is applied in the standard order */
+	private final boolean tables;
+
+	/** Layers applied in each round, from the initial whitening key onward */
+	private final int[][] steps;
+
+	/**
+	 *	Creates an engine that applies the layers in their standard order.
+	 *
+	 *	@param	key			Encryption key (16, 24 or 32 bytes)
+	 *	@param	rounds		Number of rounds to perform
+	 *	@param	mask		Layers to apply, combined from the layer mask bits
+	 */
+	public ReducedRoundEngine(byte[] key, int rounds, int mask)
+	{
+		this(key, rounds, mask, STANDARD_ORDER);
+	}
+
+	/**
+	 *	Creates an engine that applies the layers in the given order.
+	 *
+	 *	@param	key			Encryption key (16, 24 or 32 bytes)
+	 *	@param	rounds		Number of rounds to perform
+	 *	@param	mask		Layers to apply, combined from the layer mask bits
+	 *	@param	order		Order of the layers within every round
+	 */
+	public ReducedRoundEngine(byte[] key, int rounds, int mask, int[] order)
+	{
+		int[] full = AESCore.expandKey(key);
+
+		// Confirm that the key schedule covers the requested number of rounds
+		if(rounds < 1 || rounds > (full.length / 4) - 1)
+		{
+			System.out.println("[Error] Invalid round count input to ReducedRoundEngine(). Halting execution.");
+			System.exit(1);
+		}
+
+		// Confirm that every layer appears in the order exactly once
+		int seen = 0;
+		for(int i = 0; i < order.length; i++)
+		{
+			if(Integer.bitCount(order[i]) != 1 || (order[i] & ALL_LAYERS) == 0 || (seen & order[i]) != 0)
+			{
+				System.out.println("[Error] Invalid layer order input to ReducedRoundEngine(). Halting execution.");
+				System.exit(1);
+			}
+
+			seen |= order[i];
+		}
+
+		if(order.length != 4 || seen != ALL_LAYERS)
+		{
+			System.out.println("[Error] Invalid layer order input to ReducedRoundEngine(). Halting execution.");
+			System.exit(1);
+		}
+
+		this.w = full;
+		this.rounds = rounds;
+		this.mixLastRound = (mask & FULL_LAST_ROUND) != 0;
+		this.tables = (mask & ALL_LAYERS) == ALL_LAYERS && Arrays.equals(order, STANDARD_ORDER);
+		this.steps = new int[rounds + 1][];
+
+		// Resolve the layers of every round once, so that skipped or reordered
+		// layers cost nothing per block
+		steps[0] = ((mask & KEY_ADDITION) != 0) ? new int[] {KEY_ADDITION} : new int[0];
+
+		for(int round = 1; round <= rounds; round++)
+		{
+			boolean last = round == rounds && !mixLastRound;
+			int[] layers = new int[4];
+			int count = 0;
+
+			for(int i = 0; i < 4; i++)
+			{
+				if((mask & order[i]) != 0 && !(last && order[i] == MIX_COLUMNS))
+					layers[count++] = order[i];
+			}
+
+			steps[round] = Arrays.copyOf(layers, count);
+		}
+	}
+
+	/**
+	 *	Encrypts a single block with the configured rounds and layers.
+	 *
+	 *	@param	in		Input buffer
+	 *	@param	inOff	Offset of the plaintext block in the input buffer
+	 *	@param	out		Output buffer (may be the input buffer)
+	 *	@param	outOff	Offset of the ciphertext block in the output buffer
+	 */
+	public void encrypt(byte[] in, int inOff, byte[] out, int outOff)
+	{
+		if(tables)
+		{
+			AESCore.encryptRounds(w, 0, rounds, mixLastRound, in, inOff, out, outOff);
+			return;
+		}
+
+		byte[] state = new byte[AESCore.BLOCK_SIZE];
+
+		System.arraycopy(in, inOff, state, 0, AESCore.BLOCK_SIZE);
+		encryptState(state);
+		System.arraycopy(state, 0, out, outOff, AESCore.BLOCK_SIZE);
+	}
+
+	/**
+	 *	Encrypts a batch of consecutive blocks in parallel.
+	 *
+	 *	@param	in		Plaintext blocks
+	 *	@param	out		Ciphertext blocks (may be the input buffer)
+	 *	@param	blocks	Number of blocks to encrypt
+	 */
+	public void encryptBatch(byte[] in, byte[] out, int blocks)
+	{
+		int chunks = (blocks + CHUNK_BLOCKS - 1) / CHUNK_BLOCKS;
+
+		IntStream.range(0, chunks).parallel().forEach(chunk ->
+		{
+			byte[] state = new byte[AESCore.BLOCK_SIZE];
+			int end = Math.min(blocks, (chunk + 1) * CHUNK_BLOCKS);
+
+			for(int b = chunk * CHUNK_BLOCKS; b < end; b++)
+			{
+				if(tables)
+				{
+					AESCore.encryptRounds(w, 0, rounds, mixLastRound, in, b * AESCore.BLOCK_SIZE, out, b * AESCore.BLOCK_SIZE);
+					continue;
+				}
+
+				System.arraycopy(in, b * AESCore.BLOCK_SIZE, state, 0, AESCore.BLOCK_SIZE);
+				encryptState(state);
+				System.arraycopy(state, 0, out, b * AESCore.BLOCK_SIZE, AESCore.BLOCK_SIZE);
+			}
+		});
+	}
+
+	/**
+	 *	Builds the difference distribution of the output bytes for pairs of
+	 *	random plaintexts that differ by a fixed input difference. Entry
+	 *	(256 * i) + d counts the pairs whose output difference in byte i was d.
+	 *
+	 *	@param	inputDelta	Input difference (16 bytes)
+	 *	@param	pairs		Number of plaintext pairs to evaluate
+	 *	@param	seed		Seed for the plaintext generator
+	 *	@return				Difference counters (16 * 256 entries)
+	 */
+	public long[] differenceDistribution(byte[] inputDelta, long pairs, long seed)
+	{
+		AESCore.validateBlock(inputDelta, "differenceDistribution()");
+
+		long chunks = (pairs + CHUNK_BLOCKS - 1) / CHUNK_BLOCKS;
+		int tasks = (int) Math.min(chunks, Runtime.getRuntime().availableProcessors() * 4L);
+
+		// Every task counts into its own table, and tables are summed on merge
+		return IntStream.range(0, tasks).parallel().mapToObj(task ->
+		{
+			long[] counts = new long[16 * 256];
+			byte[] p0 = new byte[AESCore.BLOCK_SIZE];
+			byte[] p1 = new byte[AESCore.BLOCK_SIZE];
+
+			for(long chunk = task; chunk < chunks; chunk += tasks)
+			{
+				SplittableRandom random = new SplittableRandom(seed ^ (chunk * 0x9E3779B97F4A7C15L));
+				long end = Math.min(pairs, (chunk + 1) * CHUNK_BLOCKS);
+
+				for(long n = chunk * CHUNK_BLOCKS; n < end; n++)
+				{
+					// Generate a plaintext and its partner under the input difference
+					long lo = random.nextLong();
+					long hi = random.nextLong();
+
+					for(int i = 0; i < 8; i++)
+					{
+						p0[i]     = (byte) (lo >>> (8 * i));
+						p0[i + 8] = (byte) (hi >>> (8 * i));
+					}
+
+					for(int i = 0; i < AESCore.BLOCK_SIZE; i++)
+						p1[i] = (byte) (p0[i] ^ inputDelta[i]);
+
+					encryptState(p0);
+					encryptState(p1);
+
+					for(int i = 0; i < AESCore.BLOCK_SIZE; i++)
+						counts[(256 * i) + ((p0[i] ^ p1[i]) & 0xFF)]++;
+				}
+			}
+
+			return counts;
+		}).reduce(new long[16 * 256], (a, b) ->
+		{
+			long[] sum = new long[a.length];
+
+			for(int i = 0; i < sum.length; i++)
+				sum[i] = a[i] + b[i];
+
+			return sum;
+		});
+	}
+
+	/**
+	 *	Computes the XOR-sum of the ciphertexts of a batch of lambda-sets. Every
+	 *	Lambda-set takes all values in its active bytes while the remaining bytes
+	 *	are held constant at the values of its base plaintext.
+	 *
+	 *	@param	bases		Base plaintexts, one 16 byte block per lambda-set
+	 *	@param	sets		Number of lambda-sets
+	 *	@param	active		Positions of the active bytes (at most four)
+	 *	@return				XOR-sums, one 16 byte block per lambda-set
+	 */
+	public byte[] lambdaSetXorSums(byte[] bases, int sets, int[] active)
+	{
+		// Confirm that the lambda-set size can be counted in a long
+		if(active.length < 1 || active.length > 4)
+		{
+			System.out.println("[Error] Invalid number of active bytes input to lambdaSetXorSums(). Halting execution.");
+			System.exit(1);
+		}
+
+		// Confirm that the active bytes are distinct positions within the block
+		int positions = 0;
+		for(int i = 0; i < active.length; i++)
+		{
+			if(active[i] < 0 || active[i] >= AESCore.BLOCK_SIZE || (positions & (1 << active[i])) != 0)
+			{
+				System.out.println("[Error] Invalid active byte position input to lambdaSetXorSums(). Halting execution.");
+				System.exit(1);
+			}
+
+			positions |= 1 << active[i];
+		}
+
+		byte[] sums = new byte[sets * AESCore.BLOCK_SIZE];
+		long size = 1L << (8 * active.length);
+
+		IntStream.range(0, sets).parallel().forEach(set ->
+		{
+			byte[] state = new byte[AESCore.BLOCK_SIZE];
+			byte[] sum = new byte[AESCore.BLOCK_SIZE];
+
+			for(long v = 0; v < size; v++)
+			{
+				System.arraycopy(bases, set * AESCore.BLOCK_SIZE, state, 0, AESCore.BLOCK_SIZE);
+
+				for(int i = 0; i < active.length; i++)
+					state[active[i]] = (byte) (v >>> (8 * i));
+
+				encryptState(state);
+
+				for(int i = 0; i < AESCore.BLOCK_SIZE; i++)
+					sum[i] ^= state[i];
+			}
+
+			System.arraycopy(sum, 0, sums, set * AESCore.BLOCK_SIZE, AESCore.BLOCK_SIZE);
+		});
+
+		return sums;
+	}
+
+	/**
+	 *	Applies the configured rounds and layers to a data path in place. The
+	 *	standard round runs on the T-tables, and any other configuration runs
+	 *	one layer at a time.
+	 *
+	 *	@param	state	Data path (16 bytes, modified in place)
+	 */
+	private void encryptState(byte[] state)
+	{
+		if(tables)
+		{
+			AESCore.encryptRounds(w, 0, rounds, mixLastRound, state, 0, state, 0);
+			return;
+		}
+
+		for(int round = 0; round <= rounds; round++)
+		{
+			int[] layers = steps[round];
+
+			for(int i = 0; i < layers.length; i++)
+			{
+				switch(layers[i])
+				{
+					case BYTE_SUBSTITUTION: AESCore.byteSubstitution(state); break;
+					case SHIFT_ROWS:        AESCore.shiftRows(state); break;
+					case MIX_COLUMNS:       AESCore.mixColumns(state); break;
+					case KEY_ADDITION:      AESCore.keyAddition(state, w, round); break;
+					default: break;
+				}
+			}
+		}
+	}
+}
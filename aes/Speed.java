@@ -0,0 +1,328 @@
+package aes;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *	Command-line speed tool in the spirit of "openssl speed". Runs timed
+ *	loops over each mode of operation for 128, 192 and 256 bit keys across
+ *	a sweep of payload sizes and thread counts, and reports throughput,
+ *	estimated cycles per byte and allocation per operation.
+ *
+ *	Usage: java aes.Speed [-seconds s] [-modes ecb,cbc,ctr,gcm]
+ *	                      [-keys 128,192,256] [-sizes 16,256,...]
+ *	                      [-threads 1,2,...] [-ghz f]
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class Speed
+{
+	/** Modes of operation that can be measured */
+	private static final String[] MODES = {"ecb", "cbc", "ctr", "gcm"};
+
+	/** Default payload sizes, from one block up to 16 MiB */
+	private static final int[] SIZES = {16, 256, 4096, 65536, 1 << 20, 1 << 24};
+
+	public static void main(String[] args) throws Exception
+	{
+		double seconds = 1.0;
+		String[] modes = MODES;
+		int[] keys = {128, 192, 256};
+		int[] sizes = SIZES;
+		int[] threads = defaultThreads();
+		double ghz = estimateGhz();
+
+		// Parse command-line options
+		for(int i = 0; i < args.length; i++)
+		{
+			String value = (i + 1 < args.length) ? args[i + 1] : null;
+
+			if(value == null)
+				usage("Missing value for " + args[i]);
+
+			switch(args[i])
+			{
+				case "-seconds": seconds = Double.parseDouble(value); break;
+				case "-modes":   modes = value.toLowerCase().split(","); break;
+				case "-keys":    keys = parseInts(value); break;
+				case "-sizes":   sizes = parseInts(value); break;
+				case "-threads": threads = parseInts(value); break;
+				case "-ghz":     ghz = Double.parseDouble(value); break;
+				default:         usage("Unknown option " + args[i]); break;
+			}
+
+			i++;
+		}
+
+		// Also rejects NaN, which fails every comparison
+		if(!(seconds > 0) || Double.isInfinite(seconds))
+			usage("Invalid duration " + seconds);
+
+		for(String mode : modes)
+		{
+			if(indexOf(MODES, mode) < 0)
+				usage("Unknown mode " + mode);
+		}
+
+		for(int keyBits : keys)
+		{
+			if(keyBits != 128 && keyBits != 192 && keyBits != 256)
+				usage("Invalid key size " + keyBits);
+		}
+
+		// ECB and CBC only accept whole blocks
+		for(int size : sizes)
+		{
+			if(size < AESCore.BLOCK_SIZE || size % AESCore.BLOCK_SIZE != 0)
+				usage("Invalid payload size " + size + " (must be a positive multiple of 16)");
+		}
+
+		for(int t : threads)
+		{
+			if(t < 1)
+				usage("Invalid thread count " + t);
+		}
+
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		System.out.printf("Timing %.2f s per measurement, cycles estimated at %.2f GHz%n%n", seconds, ghz);
+		System.out.printf("%-12s %10s %8s %14s %10s %14s%n", "mode", "bytes", "threads", "bytes/sec", "cyc/byte", "alloc/op (B)");
+
+		for(String mode : modes)
+		{
+			for(int keyBits : keys)
+			{
+				for(int size : sizes)
+				{
+					for(int t : threads)
+					{
+						Result r = measure(mode, keyBits, size, t, seconds);
+
+						// Threads beyond the number of processors add no cycles
+						double bytesPerSec = r.bytes / r.seconds;
+						double cyclesPerByte = (ghz * 1e9 * Math.min(t, cores)) / bytesPerSec;
+
+						System.out.printf("%-12s %10d %8d %14.0f %10.2f %14.1f%n",
+							mode + "-" + keyBits, size, t, bytesPerSec, cyclesPerByte, (double) r.allocated / r.ops);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 *	Runs one timed measurement on the given number of threads. Every
+	 *	thread performs a short warm-up before its timed loop.
+	 *
+	 *	@param	mode		Mode of operation
+	 *	@param	keyBits		Key size in bits
+	 *	@param	size		Payload size in bytes
+	 *	@param	threads		Number of threads
+	 *	@param	seconds		Duration of the timed loop
+	 *	@return				Combined result of all threads
+	 */
+	private static Result measure(String mode, int keyBits, int size, int threads, double seconds) throws Exception
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+		try
+		{
+			for(int t = 0; t < threads; t++)
+			{
+				final long seed = t;
+
+				futures.add(pool.submit(new Callable<Result>()
+				{
+					public Result call()
+					{
+						Random random = new Random(seed);
+						byte[] key = new byte[keyBits / 8];
+						byte[] in = new byte[size];
+						byte[] out = new byte[size + AESModes.TAG_SIZE];
+						byte[] iv = new byte[AESCore.BLOCK_SIZE];
+						byte[] nonce = new byte[12];
+						byte[] aad = new byte[0];
+
+						random.nextBytes(key);
+						random.nextBytes(in);
+						random.nextBytes(iv);
+						random.nextBytes(nonce);
+
+						int[] w = AESCore.expandKey(key);
+
+						// Warm up for a tenth of the measurement
+						run(mode, w, iv, nonce, aad, in, out, seconds / 10);
+
+						long before = allocatedBytes();
+						Result r = run(mode, w, iv, nonce, aad, in, out, seconds);
+						r.allocated = allocatedBytes() - before;
+
+						return r;
+					}
+				}));
+			}
+
+			Result total = new Result();
+
+			for(Future<Result> f : futures)
+			{
+				Result r = f.get();
+
+				total.ops += r.ops;
+				total.bytes += r.bytes;
+				total.allocated += r.allocated;
+				total.seconds = Math.max(total.seconds, r.seconds);
+			}
+
+			return total;
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 *	Repeats an operation until the requested time has elapsed. At least
+	 *	one operation is always performed.
+	 */
+	private static Result run(String mode, int[] w, byte[] iv, byte[] nonce, byte[] aad, byte[] in, byte[] out, double seconds)
+	{
+		Result r = new Result();
+		long limit = (long) (seconds * 1e9);
+		long start = System.nanoTime();
+		long elapsed;
+
+		do
+		{
+			switch(mode)
+			{
+				case "ecb": AESModes.ecbEncrypt(w, in, 0, in.length, out, 0); break;
+				case "cbc": AESModes.cbcEncrypt(w, iv, in, 0, in.length, out, 0); break;
+				case "ctr": AESModes.ctr(w, iv, in, 0, in.length, out, 0); break;
+				case "gcm": AESModes.gcmEncrypt(w, nonce, aad, in, 0, in.length, out, 0); break;
+				default: break;
+			}
+
+			r.ops++;
+			r.bytes += in.length;
+			elapsed = System.nanoTime() - start;
+		}
+		while(elapsed < limit);
+
+		r.seconds = elapsed / 1e9;
+		return r;
+	}
+
+	/**
+	 *	Returns the number of bytes allocated so far by the current thread,
+	 *	or 0 if the JVM does not support allocation accounting.
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if(bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+
+		return 0;
+	}
+
+	/**
+	 *	Estimates the processor clock from /proc/cpuinfo, falling back to
+	 *	3 GHz where it is unavailable. The estimate can be overridden with
+	 *	the -ghz option.
+	 */
+	private static double estimateGhz()
+	{
+		try(BufferedReader reader = new BufferedReader(new FileReader("/proc/cpuinfo")))
+		{
+			String line;
+
+			while((line = reader.readLine()) != null)
+			{
+				if(line.startsWith("cpu MHz"))
+					return Double.parseDouble(line.substring(line.indexOf(':') + 1).trim()) / 1000;
+			}
+		}
+		catch(IOException | NumberFormatException e)
+		{
+			// Fall through to the default
+		}
+
+		return 3.0;
+	}
+
+	/**
+	 *	Returns the powers of two up to the number of available processors,
+	 *	followed by the number of available processors itself.
+	 */
+	private static int[] defaultThreads()
+	{
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<Integer> counts = new ArrayList<Integer>();
+
+		for(int t = 1; t < cores; t *= 2)
+			counts.add(t);
+
+		counts.add(cores);
+
+		int[] threads = new int[counts.size()];
+		for(int i = 0; i < threads.length; i++)
+			threads[i] = counts.get(i);
+
+		return threads;
+	}
+
+	private static int[] parseInts(String list)
+	{
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+
+		for(int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+
+		return values;
+	}
+
+	private static int indexOf(String[] values, String value)
+	{
+		for(int i = 0; i < values.length; i++)
+		{
+			if(values[i].equals(value))
+				return i;
+		}
+
+		return -1;
+	}
+
+	private static void usage(String message)
+	{
+		System.out.println("[Error] " + message + ". Halting execution.");
+		System.out.println("Usage: java aes.Speed [-seconds s] [-modes ecb,cbc,ctr,gcm] [-keys 128,192,256] [-sizes 16,256,...] [-threads 1,2,...] [-ghz f]");
+		System.exit(1);
+	}
+
+	/**
+	 *	Counters collected by a timed loop.
+	 */
+	private static class Result
+	{
+		long ops;
+		long bytes;
+		long allocated;
+		double seconds;
+	}
+}
@@ -0,0 +1,189 @@
+package aes;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ *	Build step that derives the lookup tables used by the cipher and writes
+ *	them as static arrays to AESTables.java. Every table is computed from
+ *	arithmetic in the extension field GF(2^8) rather than copied, so the
+ *	generated source can be regenerated and checked at any time.
+ *
+ *	Usage: java aes.TableGenerator [output file]
+ *
+ *	@author		Christian Westbrook
+ *	@version	1.0
+ */
+
+public class TableGenerator
+{
+	public static void main(String[] args) throws IOException
+	{
+		String path = (args.length > 0) ? args[0] : "aes/AESTables.java";
+
+		// Compute the S-box and its inverse
+		int[] sBox = new int[256];
+		int[] invSBox = new int[256];
+
+		for(int i = 0; i < 256; i++)
+		{
+			sBox[i] = affine(inverse(i));
+			invSBox[sBox[i]] = i;
+		}
+
+		// Compute the round coefficients x^(i - 1)
+		int[] rcon = new int[10];
+		rcon[0] = 1;
+
+		for(int i = 1; i < rcon.length; i++)
+			rcon[i] = multiply(rcon[i - 1], 2);
+
+		// Compute the T-tables, which combine ByteSubstitution and MixColumns
+		int[][] te = new int[4][256];
+
+		for(int i = 0; i < 256; i++)
+		{
+			int s = sBox[i];
+			int t = (multiply(s, 2) << 24) | (s << 16) | (s << 8) | multiply(s, 3);
+
+			for(int j = 0; j < 4; j++)
+				te[j][i] = (t >>> (8 * j)) | (t << (32 - (8 * j)));
+		}
+
+		try(PrintWriter out = new PrintWriter(path, "US-ASCII"))
+		{
+			out.println("package aes;");
+			out.println();
+			out.println("/**");
+			out.println(" *\tLookup tables for the Advanced Encryption Standard.");
+			out.println(" *");
+			out.println(" *\tGenerated by TableGenerator. Do not edit by hand.");
+			out.println(" */");
+			out.println();
+			out.println("final class AESTables");
+			out.println("{");
+			out.println("\tprivate AESTables()");
+			out.println("\t{");
+			out.println("\t}");
+
+			writeBytes(out, "S-box conversion table", "SBOX", sBox);
+			writeBytes(out, "Inverse S-box conversion table", "INV_SBOX", invSBox);
+			writeInts(out, "Round coefficients used by the key schedule", "RCON", rcon);
+
+			for(int j = 0; j < 4; j++)
+				writeInts(out, "Encryption T-table for row " + j, "TE" + j, te[j]);
+
+			int[] factors = {2, 3, 9, 11, 13, 14};
+
+			for(int f : factors)
+			{
+				int[] table = new int[256];
+
+				for(int i = 0; i < 256; i++)
+					table[i] = multiply(i, f);
+
+				writeBytes(out, "Multiplication by " + f + " in GF(2^8)", "MUL" + f, table);
+			}
+
+			out.println("}");
+		}
+	}
+
+	/**
+	 *	Multiplies two elements of the extension field GF(2^8).
+	 *
+	 *	@param	a	Field element (0 - 255)
+	 *	@param	b	Field element (0 - 255)
+	 *	@return		Product reduced by the AES polynomial
+	 */
+	static int multiply(int a, int b)
+	{
+		int product = 0;
+
+		while(b != 0)
+		{
+			if((b & 1) != 0)
+				product ^= a;
+
+			a = ((a << 1) ^ ((a >>> 7) * 0x1B)) & 0xFF;
+			b >>>= 1;
+		}
+
+		return product;
+	}
+
+	/**
+	 *	Computes the multiplicative inverse in GF(2^8) as a^254, with the
+	 *	inverse of 0 defined as 0.
+	 */
+	static int inverse(int a)
+	{
+		int result = 1;
+
+		for(int i = 0; i < 254; i++)
+			result = multiply(result, a);
+
+		return (a == 0) ? 0 : result;
+	}
+
+	/**
+	 *	Applies the affine transformation of the S-box.
+	 */
+	static int affine(int b)
+	{
+		int s = b;
+
+		for(int i = 1; i <= 4; i++)
+			s ^= ((b << i) | (b >>> (8 - i))) & 0xFF;
+
+		return s ^ 0x63;
+	}
+
+	private static void writeBytes(PrintWriter out, String comment, String name, int[] values)
+	{
+		out.println();
+		out.println("\t/** " + comment + " */");
+		out.println("\tstatic final byte[] " + name + " = {");
+
+		for(int i = 0; i < values.length; i += 16)
+		{
+			StringBuilder line = new StringBuilder("\t\t");
+
+			for(int j = i; j < i + 16 && j < values.length; j++)
+			{
+				line.append(String.format("(byte) 0x%02X", values[j]));
+
+				if(j < values.length - 1)
+					line.append(", ");
+			}
+
+			out.println(line.toString().replaceAll(" $", ""));
+		}
+
+		out.println("\t};");
+	}
+
+	private static void writeInts(PrintWriter out, String comment, String name, int[] values)
+	{
+		out.println();
+		out.println("\t/** " + comment + " */");
+		out.println("\tstatic final int[] " + name + " = {");
+
+		for(int i = 0; i < values.length; i += 8)
+		{
+			StringBuilder line = new StringBuilder("\t\t");
+
+			for(int j = i; j < i + 8 && j < values.length; j++)
+			{
+				line.append(String.format("0x%08X", values[j]));
+
+				if(j < values.length - 1)
+					line.append(", ");
+			}
+
+			out.println(line.toString().replaceAll(" $", ""));
+		}
+
+		out.println("\t};");
+	}
+}
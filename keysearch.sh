@@ -0,0 +1,2 @@
+javac ./aes/KeySearch.java
+java aes.KeySearch "$@"
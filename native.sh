@@ -0,0 +1,2 @@
+javac ./aes/Encrypt.java
+native-image -cp . aes.Encrypt
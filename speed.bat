@@ -0,0 +1,2 @@
+javac ./aes/Speed.java
+java aes.Speed %*
@@ -0,0 +1,2 @@
+javac ./aes/TableGenerator.java
+java aes.TableGenerator aes/AESTables.java